@@ -1,11 +1,18 @@
 package Client;
 
 import Objects.RequestObject;
+import Security.TlsContextFactory;
 
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -17,19 +24,31 @@ public class Client implements Runnable {
     private final Scanner INPUT = new Scanner(System.in);
     private static final String HOST_ADDRESS = "127.0.0.1";
     private static final int PORT = 2000;
+    private static final int TLS_PORT = 2001;
+    private static final int PAGE_SIZE = 50;
     private Socket socket;
     private static boolean isRunning;
     private ObjectOutputStream oos;
 
     public static void main(String[] args) {
-        new Client();
+        new Client(args.length > 0 && args[0].equalsIgnoreCase("tls"));
     }
 
     public Client() {
+        this(false);
+    }
+
+    /**
+     * Connects to the server, over TLS if useTls is true. The server certificate is verified against the truststore
+     * given by the system properties tls.truststore and tls.password.
+     *
+     * @param useTls Boolean value if TLS should be used
+     */
+    public Client(boolean useTls) {
         try {
-            socket = new Socket(HOST_ADDRESS, PORT);
+            socket = useTls ? createTlsSocket() : new Socket(HOST_ADDRESS, PORT);
             System.out.println("Connected to " + socket);
-        } catch (IOException e) {
+        } catch (IOException | GeneralSecurityException e) {
             e.printStackTrace();
             System.exit(1);
         }
@@ -48,10 +67,24 @@ public class Client implements Runnable {
         }
     }
 
+    private Socket createTlsSocket() throws IOException, GeneralSecurityException {
+        Path truststore = Path.of(System.getProperty("tls.truststore", "truststore.p12"));
+        char[] password = System.getProperty("tls.password", "changeit").toCharArray();
+        SSLSocket tlsSocket = (SSLSocket) TlsContextFactory.createClientContext(truststore, password)
+                .getSocketFactory().createSocket(HOST_ADDRESS, TLS_PORT);
+        SSLParameters parameters = tlsSocket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        tlsSocket.setSSLParameters(parameters);
+        tlsSocket.startHandshake();
+        return tlsSocket;
+    }
+
     private void handleCommands(String command) {
         switch (command.toLowerCase()) {
             case "login", "create", "reset" -> sendAccountRequest(command.toLowerCase().trim());
             case "search", "delete", "logout" -> sendFunctionRequest(command.toLowerCase().trim());
+            case "prefix", "list" -> sendSearchRequest(command.toLowerCase().trim());
+            case "batchsearch", "batchdelete" -> sendBatchRequest(command.toLowerCase().trim());
             default -> printCommands();
         }
     }
@@ -84,6 +117,40 @@ public class Client implements Runnable {
         }
     }
 
+    private void sendSearchRequest(String requestType) {
+        String pattern = "";
+        if (requestType.equals("prefix")) {
+            System.out.println("Prefix (wildcards * and ? allowed):");
+            pattern = INPUT.nextLine();
+        }
+        System.out.println("Start after username (empty for first page):");
+        String cursor = INPUT.nextLine();
+        try {
+            oos = new ObjectOutputStream(socket.getOutputStream());
+            RequestObject request = new RequestObject(requestType, pattern, cursor, PAGE_SIZE);
+            oos.writeObject(request);
+            oos.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sendBatchRequest(String requestType) {
+        System.out.println("Usernames (separated by commas):");
+        List<String> usernames = Arrays.stream(INPUT.nextLine().split(","))
+                .map(String::trim)
+                .filter(username -> !username.isEmpty())
+                .toList();
+        try {
+            oos = new ObjectOutputStream(socket.getOutputStream());
+            RequestObject request = new RequestObject(requestType, usernames);
+            oos.writeObject(request);
+            oos.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private void printCommands() {
         System.out.println("""
                 The commands are:\s
@@ -95,7 +162,11 @@ public class Client implements Runnable {
                                 
                 While logged in:
                     ---> Search (Search for user)
-                    ---> Delete (Delete user)"""
+                    ---> Prefix (Search for users by prefix)
+                    ---> List (List all users)
+                    ---> Delete (Delete user)
+                    ---> BatchSearch (Search for many users)
+                    ---> BatchDelete (Delete many users)"""
         );
     }
 
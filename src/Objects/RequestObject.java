@@ -1,6 +1,8 @@
 package Objects;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Custom object created to test communication between client and server.
@@ -9,6 +11,9 @@ public class RequestObject implements Serializable {
     private final String REQUEST_TYPE;
     private final String USERNAME;
     private String password;
+    private String cursor;
+    private int pageSize;
+    private ArrayList<String> usernames;
 
     /**
      * First constructor creating RequestObject with 3 parameters. Used mainly for creating accounts, logging in
@@ -36,6 +41,35 @@ public class RequestObject implements Serializable {
         this.USERNAME = username;
     }
 
+    /**
+     * Third constructor creating RequestObjects for paged searches. The username is used as the search pattern, and
+     * the cursor is the last username of the previous page (empty for the first page).
+     *
+     * @param requestType String of the request type
+     * @param username    String of the search pattern
+     * @param cursor      String of the last username of the previous page
+     * @param pageSize    Integer of the maximum number of results
+     */
+    public RequestObject(String requestType, String username, String cursor, int pageSize) {
+        this.REQUEST_TYPE = requestType;
+        this.USERNAME = username;
+        this.cursor = cursor;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Fourth constructor creating RequestObjects for batch operations on several users at once (can be used for
+     * searching and deleting many users in one request).
+     *
+     * @param requestType String of the request type
+     * @param usernames   List of the usernames
+     */
+    public RequestObject(String requestType, List<String> usernames) {
+        this.REQUEST_TYPE = requestType;
+        this.USERNAME = null;
+        this.usernames = new ArrayList<>(usernames);
+    }
+
     /**
      * Method to get the username
      *
@@ -54,6 +88,33 @@ public class RequestObject implements Serializable {
         return password;
     }
 
+    /**
+     * Method to get the search cursor
+     *
+     * @return String of the last username of the previous page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Method to get the page size
+     *
+     * @return Integer of the maximum number of results
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Method to get the usernames of a batch request
+     *
+     * @return List of the usernames (empty if the request was not created with a list)
+     */
+    public List<String> getUsernames() {
+        return (usernames != null) ? usernames : List.of();
+    }
+
     /**
      * Method to get the request type
      *
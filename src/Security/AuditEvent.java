@@ -0,0 +1,164 @@
+package Security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Security audit event describing an account operation: what was done, who did it, to which account, from which
+ * IP address, when, and the resulting status. Events are encoded to a compact binary form to be stored by the AuditLog.
+ */
+public class AuditEvent {
+    private final long TIMESTAMP;
+    private final String ACTION;
+    private final String ACTOR;
+    private final String TARGET;
+    private final String IP_ADDRESS;
+    private final String STATUS;
+
+    /**
+     * Types of operations that are audited.
+     */
+    public enum Action {
+        LOGIN,
+        CREATE,
+        RESET,
+        DELETE
+    }
+
+    /**
+     * Creates a new audit event with the current time as timestamp.
+     *
+     * @param action    Action that was performed
+     * @param actor     String of the username performing the action
+     * @param target    String of the username the action was performed on
+     * @param ipAddress String of the IP address of the client
+     * @param status    String of the status of the operation
+     */
+    public AuditEvent(Action action, String actor, String target, String ipAddress, String status) {
+        this(System.currentTimeMillis(), action.name(), actor, target, ipAddress, status);
+    }
+
+    private AuditEvent(long timestamp, String action, String actor, String target, String ipAddress, String status) {
+        this.TIMESTAMP = timestamp;
+        this.ACTION = action;
+        this.ACTOR = actor;
+        this.TARGET = target;
+        this.IP_ADDRESS = ipAddress;
+        this.STATUS = status;
+    }
+
+    /**
+     * Encodes the event as bytes. The timestamp is always stored first (8 bytes) so it can be read without decoding
+     * the rest of the event, followed by the strings as a short length and UTF-8 bytes.
+     *
+     * @return Bytearray of the encoded event
+     */
+    public byte[] toBytes() {
+        byte[][] strings = {encode(ACTION), encode(ACTOR), encode(TARGET), encode(IP_ADDRESS), encode(STATUS)};
+        int size = Long.BYTES;
+        for (byte[] string : strings) {
+            size += Short.BYTES + string.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(TIMESTAMP);
+        for (byte[] string : strings) {
+            buffer.putShort((short) string.length);
+            buffer.put(string);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes an event from the buffers current position.
+     *
+     * @param buffer ByteBuffer positioned at the start of an encoded event
+     * @return The decoded AuditEvent
+     */
+    public static AuditEvent fromBytes(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        return new AuditEvent(timestamp, decode(buffer), decode(buffer), decode(buffer), decode(buffer),
+                decode(buffer));
+    }
+
+    /**
+     * Method to get the time of the event
+     *
+     * @return Long of the timestamp in milliseconds since epoch
+     */
+    public long getTimestamp() {
+        return TIMESTAMP;
+    }
+
+    /**
+     * Method to get the action
+     *
+     * @return String of the action
+     */
+    public String getAction() {
+        return ACTION;
+    }
+
+    /**
+     * Method to get the username performing the action
+     *
+     * @return String of the actor
+     */
+    public String getActor() {
+        return ACTOR;
+    }
+
+    /**
+     * Method to get the username the action was performed on
+     *
+     * @return String of the target
+     */
+    public String getTarget() {
+        return TARGET;
+    }
+
+    /**
+     * Method to get the IP address of the client
+     *
+     * @return String of the IP address
+     */
+    public String getIpAddress() {
+        return IP_ADDRESS;
+    }
+
+    /**
+     * Method to get the status of the operation
+     *
+     * @return String of the status
+     */
+    public String getStatus() {
+        return STATUS;
+    }
+
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(TIMESTAMP) + " " + ACTION + " actor=" + ACTOR + " target=" + TARGET
+                + " ip=" + IP_ADDRESS + " status=" + STATUS;
+    }
+
+    /**
+     * Encodes a string as UTF-8, truncated so its length fits in a short.
+     */
+    private static byte[] encode(String string) {
+        byte[] bytes = (string == null ? "" : string).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            return Arrays.copyOf(bytes, Short.MAX_VALUE);
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes a string stored as a short length followed by UTF-8 bytes.
+     */
+    private static String decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
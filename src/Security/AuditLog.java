@@ -0,0 +1,199 @@
+package Security;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Asynchronous, append-only security audit log. Handlers add events to a lock-free queue without blocking, and a
+ * separate writer thread group-commits them in batches to memory-mapped segment files that are rotated when full.
+ * <p>
+ * Each record is framed as: int length, int CRC32 of the payload, payload (see AuditEvent). A length of 0 marks the
+ * end of the written data in a segment, since new segments are zero-filled. Segments can be read with AuditScanner.
+ */
+public class AuditLog implements Runnable {
+    public static final String SEGMENT_PREFIX = "audit-";
+    public static final String SEGMENT_SUFFIX = ".log";
+    public static final int FRAME_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_BATCH_SIZE = 4096;
+    private static final int MAX_PENDING_EVENTS = 100_000;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Path DIRECTORY;
+    private final ConcurrentLinkedQueue<AuditEvent> QUEUE = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger PENDING_EVENTS = new AtomicInteger();
+    private final AtomicLong DROPPED_EVENTS = new AtomicLong();
+    private final CRC32 CRC = new CRC32();
+    private final Thread WRITER_THREAD;
+    private volatile boolean isRunning;
+    private long segmentIndex;
+    private MappedByteBuffer segment;
+    private int batchStart;
+
+    /**
+     * Creates the audit log in the given directory and starts the writer thread. Writing continues in a new segment
+     * after the last existing one.
+     *
+     * @param directory Path of the directory the segments are stored in
+     */
+    public AuditLog(Path directory) {
+        this.DIRECTORY = directory;
+        try {
+            Files.createDirectories(directory);
+            segmentIndex = findLastSegmentIndex();
+            openNextSegment();
+            isRunning = true;
+        } catch (IOException e) {
+            System.err.println("Could not open audit log");
+            e.printStackTrace();
+        }
+        WRITER_THREAD = new Thread(this);
+        WRITER_THREAD.setDaemon(true);
+        WRITER_THREAD.start();
+    }
+
+    /**
+     * Adds an event to the log. Never blocks the calling handler, the event is written by the writer thread.
+     * If the writer has stopped, or can't keep up and MAX_PENDING_EVENTS are already waiting, the event is dropped
+     * and counted instead.
+     *
+     * @param event AuditEvent to be recorded
+     */
+    public void record(AuditEvent event) {
+        if (!isRunning) {
+            DROPPED_EVENTS.incrementAndGet();
+            return;
+        }
+        if (PENDING_EVENTS.incrementAndGet() > MAX_PENDING_EVENTS) {
+            PENDING_EVENTS.decrementAndGet();
+            DROPPED_EVENTS.incrementAndGet();
+            return;
+        }
+        QUEUE.offer(event);
+    }
+
+    /**
+     * Method to get the number of events that were dropped because the log was full or stopped.
+     *
+     * @return Long of the number of dropped events
+     */
+    public long getDroppedEvents() {
+        return DROPPED_EVENTS.get();
+    }
+
+    /**
+     * Run method of the writer thread. Drains the queue in batches, writes them to the current segment and forces
+     * the whole batch to disk at once (group commit).
+     */
+    @Override
+    public void run() {
+        while (isRunning || !QUEUE.isEmpty()) {
+            try {
+                int written = 0;
+                AuditEvent event;
+                while (written < MAX_BATCH_SIZE && (event = QUEUE.poll()) != null) {
+                    PENDING_EVENTS.decrementAndGet();
+                    write(event.toBytes());
+                    written++;
+                }
+                if (written > 0) {
+                    forceBatch();
+                } else {
+                    LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+                }
+            } catch (Throwable e) {
+                // also catches the InternalError thrown when a mapped page can't be written (e.g. the disk is full)
+                System.err.println("Could not write to audit log, audit events are dropped from now on");
+                e.printStackTrace();
+                isRunning = false;
+                DROPPED_EVENTS.addAndGet(PENDING_EVENTS.getAndSet(0));
+                QUEUE.clear();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting new events and waits for the writer thread to write the remaining ones.
+     */
+    public void close() {
+        isRunning = false;
+        try {
+            WRITER_THREAD.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a framed record to the current segment, rotating to a new segment if it does not fit.
+     *
+     * @param payload Bytearray of the encoded event
+     */
+    private void write(byte[] payload) throws IOException {
+        int frameSize = FRAME_HEADER_SIZE + payload.length;
+        // always leave room for the end marker
+        if (segment.remaining() < frameSize + Integer.BYTES) {
+            forceBatch();
+            openNextSegment();
+        }
+        CRC.reset();
+        CRC.update(payload);
+        segment.putInt(payload.length);
+        segment.putInt((int) CRC.getValue());
+        segment.put(payload);
+    }
+
+    /**
+     * Forces only the part of the segment written since the last force to disk, instead of the whole mapping.
+     */
+    private void forceBatch() {
+        int position = segment.position();
+        if (position > batchStart) {
+            segment.force(batchStart, position - batchStart);
+        }
+        batchStart = position;
+    }
+
+    /**
+     * Creates and maps the next segment file.
+     */
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        Path path = DIRECTORY.resolve(segmentName(segmentIndex));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            batchStart = 0;
+        }
+    }
+
+    /**
+     * Finds the index of the last segment in the directory, or 0 if there are none.
+     */
+    private long findLastSegmentIndex() throws IOException {
+        try (Stream<Path> files = Files.list(DIRECTORY)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .mapToLong(name -> Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .max()
+                    .orElse(0);
+        }
+    }
+
+    private static String segmentName(long index) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+}
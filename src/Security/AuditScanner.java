@@ -0,0 +1,131 @@
+package Security;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Offline tool that scans audit log segments and prints the events matching a user and/or a time range.
+ * Segments are memory-mapped and each record is only decoded if its CRC is valid and its timestamp is within the
+ * time filter, so large amounts of segments can be scanned quickly. The CRC is checked for every record (also the
+ * skipped ones) so a corrupt length can never make the scanner continue from a wrong offset.
+ * <p>
+ * Usage: AuditScanner [directory] [--user username] [--from ISO-8601 time] [--to ISO-8601 time]
+ */
+public class AuditScanner {
+    private final String USER;
+    private final long FROM;
+    private final long TO;
+    private final CRC32 CRC = new CRC32();
+    private long matches;
+    private long corruptRecords;
+
+    /**
+     * Creates a scanner with the given filters.
+     *
+     * @param user String of the username to match (actor or target), or null for all users
+     * @param from Long of the earliest timestamp to match (inclusive)
+     * @param to   Long of the latest timestamp to match (exclusive)
+     */
+    public AuditScanner(String user, long from, long to) {
+        this.USER = user;
+        this.FROM = from;
+        this.TO = to;
+    }
+
+    /**
+     * Scans all segments in a directory in order.
+     *
+     * @param directory Path of the directory containing the segments
+     */
+    public void scanDirectory(Path directory) throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(AuditLog.SEGMENT_PREFIX) && name.endsWith(AuditLog.SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+        for (Path segment : segments) {
+            scanSegment(segment);
+        }
+    }
+
+    /**
+     * Scans a single segment. Stops at the end marker, or at the first record that is cut off or fails its CRC
+     * check since nothing after it can be trusted.
+     *
+     * @param path Path of the segment
+     */
+    public void scanSegment(Path path) throws IOException {
+        MappedByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        while (segment.remaining() >= AuditLog.FRAME_HEADER_SIZE) {
+            int length = segment.getInt();
+            int crc = segment.getInt();
+            if (length < Long.BYTES || length > segment.remaining()) {
+                if (length != 0) {
+                    corruptRecords++;
+                }
+                return;
+            }
+            int payloadStart = segment.position();
+            ByteBuffer payload = segment.slice(payloadStart, length);
+            segment.position(payloadStart + length);
+
+            CRC.reset();
+            CRC.update(payload.duplicate());
+            if ((int) CRC.getValue() != crc) {
+                System.err.println("Corrupt record in " + path + " at position " + payloadStart);
+                corruptRecords++;
+                return;
+            }
+            long timestamp = payload.getLong(0);
+            if (timestamp < FROM || timestamp >= TO) {
+                continue;
+            }
+            AuditEvent event = AuditEvent.fromBytes(payload);
+            if (USER == null || USER.equals(event.getActor()) || USER.equals(event.getTarget())) {
+                matches++;
+                System.out.println(event);
+            }
+        }
+    }
+
+    /**
+     * Starts the scanner from the command line.
+     *
+     * @param args Directory followed by optional --user, --from and --to filters
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of("audit");
+        String user = null;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--user" -> user = args[++i];
+                case "--from" -> from = Instant.parse(args[++i]).toEpochMilli();
+                case "--to" -> to = Instant.parse(args[++i]).toEpochMilli();
+                default -> directory = Path.of(args[i]);
+            }
+        }
+        AuditScanner scanner = new AuditScanner(user, from, to);
+        long start = System.nanoTime();
+        scanner.scanDirectory(directory);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.err.println(scanner.matches + " matching events, " + scanner.corruptRecords + " corrupt records, "
+                + elapsedMillis + " ms");
+    }
+}
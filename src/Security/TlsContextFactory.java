@@ -0,0 +1,70 @@
+package Security;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Creates the SSLContexts used for TLS between client and server, from PKCS12 keystores (for example a self-signed
+ * certificate created with keytool, see README).
+ * Both sides keep a large session cache so reconnecting clients can resume their session with an abbreviated
+ * handshake instead of doing the full (CPU heavy) key exchange again. With TLS 1.3 the server hands out stateless
+ * session tickets (enabled by default in JDK 17, see jdk.tls.server.enableSessionTicketExtension).
+ */
+public class TlsContextFactory {
+    private static final String PROTOCOL = "TLS";
+    private static final String KEYSTORE_TYPE = "PKCS12";
+    private static final int SESSION_CACHE_SIZE = 20_000;
+    private static final int SESSION_TIMEOUT_SECONDS = 24 * 60 * 60;
+
+    /**
+     * Creates the servers SSLContext with the servers certificate and private key.
+     *
+     * @param keystore Path of the keystore containing the servers certificate
+     * @param password Chararray of the keystore password
+     * @return SSLContext for the server
+     */
+    public static SSLContext createServerContext(Path keystore, char[] password)
+            throws IOException, GeneralSecurityException {
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(loadKeyStore(keystore, password), password);
+        SSLContext context = SSLContext.getInstance(PROTOCOL);
+        context.init(keyManagerFactory.getKeyManagers(), null, null);
+        context.getServerSessionContext().setSessionCacheSize(SESSION_CACHE_SIZE);
+        context.getServerSessionContext().setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+        return context;
+    }
+
+    /**
+     * Creates the clients SSLContext that trusts the certificates in the truststore.
+     *
+     * @param truststore Path of the truststore containing the trusted (server) certificate
+     * @param password   Chararray of the truststore password
+     * @return SSLContext for the client
+     */
+    public static SSLContext createClientContext(Path truststore, char[] password)
+            throws IOException, GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(loadKeyStore(truststore, password));
+        SSLContext context = SSLContext.getInstance(PROTOCOL);
+        context.init(null, trustManagerFactory.getTrustManagers(), null);
+        context.getClientSessionContext().setSessionCacheSize(SESSION_CACHE_SIZE);
+        context.getClientSessionContext().setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+        return context;
+    }
+
+    private static KeyStore loadKeyStore(Path path, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE_TYPE);
+        try (InputStream in = Files.newInputStream(path)) {
+            keyStore.load(in, password);
+        }
+        return keyStore;
+    }
+}
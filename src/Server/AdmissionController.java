@@ -0,0 +1,129 @@
+package Server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission controller that protects the server from overload when the database (or password hashing) slows down.
+ * Keeps track of how many requests are currently being handled and adapts a concurrency limit with AIMD
+ * (additive increase, multiplicative decrease) based on the observed latency of finished requests.
+ * Requests over the limit are rejected right away instead of queueing up behind the synchronized LoginServer methods.
+ * Login requests have high priority and may use the whole limit, other requests only a part of it and never the
+ * last HIGH_PRIORITY_RESERVE slots, so logins still get through when the server is under pressure.
+ */
+public class AdmissionController {
+    private static final int INITIAL_LIMIT = 20;
+    private static final int MIN_LIMIT = 2;
+    private static final int HIGH_PRIORITY_RESERVE = 1;
+    private static final int MAX_LIMIT = 200;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LOW_PRIORITY_SHARE = 0.75;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long MAX_LATENCY_NANOS = 500_000_000L;
+    private static final double SHORT_SMOOTHING = 0.2;
+    private static final double LONG_SMOOTHING = 0.01;
+
+    private final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private volatile double limit = INITIAL_LIMIT;
+    private double shortLatency;
+    private double longLatency;
+
+    /**
+     * Priority of a request. Login requests are HIGH, everything else (create, reset, search, delete) is LOW.
+     */
+    public enum Priority {
+        HIGH,
+        LOW
+    }
+
+    /**
+     * Tries to admit a new request. If the number of requests in flight has reached the limit for the given priority
+     * the request is rejected and should be answered with {@link Status#SERVER_BUSY}.
+     * Every admitted request must be followed by a call to {@link #release(long)} or {@link #release(long, int)}.
+     *
+     * @param priority Priority of the request
+     * @return Boolean value if the request was admitted or not
+     */
+    public boolean tryAcquire(Priority priority) {
+        int allowed = (priority == Priority.HIGH)
+                ? (int) limit
+                : Math.max(0, Math.min((int) (limit * LOW_PRIORITY_SHARE), (int) limit - HIGH_PRIORITY_RESERVE));
+        while (true) {
+            int current = IN_FLIGHT.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (IN_FLIGHT.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases an admitted request and uses its latency to adjust the limit. The limit shrinks when the latency
+     * rises well above the long term average (or above a hard maximum), and grows slowly while the server keeps up.
+     *
+     * @param startNanos Value of System.nanoTime() when the request was admitted
+     */
+    public void release(long startNanos) {
+        release(startNanos, 1);
+    }
+
+    /**
+     * Releases an admitted request that worked on several items (for example a batch request), so its latency is
+     * normalized per item before it is used to adjust the limit. A request with 0 items (for example one served from
+     * memory without touching the database) is released without being used as a latency sample.
+     *
+     * @param startNanos Value of System.nanoTime() when the request was admitted
+     * @param items      Number of items the request worked on
+     */
+    public void release(long startNanos, int items) {
+        long latency = System.nanoTime() - startNanos;
+        int inFlight = IN_FLIGHT.getAndDecrement();
+        if (items > 0) {
+            updateLimit(latency / items, inFlight);
+        }
+    }
+
+    /**
+     * Method to get the current concurrency limit.
+     *
+     * @return Integer of the current limit
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Method to get the number of requests currently being handled.
+     *
+     * @return Integer of requests in flight
+     */
+    public int getInFlight() {
+        return IN_FLIGHT.get();
+    }
+
+    /**
+     * Updates the smoothed latencies and the limit after a finished request.
+     *
+     * @param latency  Latency of the finished request in nanoseconds
+     * @param inFlight Number of requests in flight when the request finished (including itself)
+     */
+    private synchronized void updateLimit(long latency, int inFlight) {
+        if (longLatency == 0) {
+            shortLatency = latency;
+            longLatency = latency;
+        } else {
+            shortLatency += SHORT_SMOOTHING * (latency - shortLatency);
+            longLatency += LONG_SMOOTHING * (latency - longLatency);
+        }
+
+        double newLimit = limit;
+        if (latency > MAX_LATENCY_NANOS || shortLatency > longLatency * LATENCY_TOLERANCE) {
+            newLimit = limit * BACKOFF_RATIO;
+        } else if (inFlight * 2 >= limit) {
+            // only grow while the limit is actually being used
+            newLimit = limit + 1.0 / limit;
+        }
+        limit = Math.max(MIN_LIMIT, Math.min(MAX_LIMIT, newLimit));
+    }
+}
@@ -1,32 +1,46 @@
 package Server;
 
 import Objects.RequestObject;
+import Security.AuditEvent;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Client handler thread that handles all incoming requests from logged-in users.
  */
 public class ClientHandler implements Runnable {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_USERNAMES = 10_000;
     private final LoginServer LOGIN_SERVER;
     private final Socket SOCKET;
+    private final String USERNAME;
     private final String ROLE;
     private ObjectInputStream ois;
     boolean waitingForRequest;
 
     /**
      * Constructor for the client handler. Keeps track of the login server, the socket its communicating with, and the
-     * users' role (to prevent certain operations in the DB). Starts the ClientHandler as a separate thread.
+     * users' name (for the audit log) and role (to prevent certain operations in the DB). Starts the ClientHandler as
+     * a separate thread.
      *
      * @param loginServer Instance of the loginServer
      * @param socket      Socket of the logged in client
+     * @param username    String of the clients username
      * @param role        String of the clients role
      */
-    public ClientHandler(LoginServer loginServer, Socket socket, String role) {
+    public ClientHandler(LoginServer loginServer, Socket socket, String username, String role) {
         this.LOGIN_SERVER = loginServer;
         this.SOCKET = socket;
+        this.USERNAME = username;
         this.ROLE = role;
 
         waitingForRequest = true;
@@ -56,14 +70,52 @@ public class ClientHandler implements Runnable {
 
     /**
      * Handles a client request by controlling what they want to do before performing that operation.
+     * Database operations must be admitted by the AdmissionController first, otherwise SERVER_BUSY is reported.
+     * Batch requests with more than MAX_BATCH_USERNAMES usernames are rejected before that.
      *
      * @param request String of the request type sent from the client.
      */
     private void handleRequest(RequestObject request) {
-        switch (request.getREQUEST_TYPE().toLowerCase()) {
-            case "search" -> searchForUser(request.getUSERNAME());
-            case "delete" -> deleteUser(request.getUSERNAME());
-            case "logout" -> logout(SOCKET);
+        String requestType = request.getREQUEST_TYPE().toLowerCase();
+        if (requestType.equals("logout")) {
+            logout(SOCKET);
+            return;
+        }
+        if (requestType.startsWith("batch") && request.getUsernames().size() > MAX_BATCH_USERNAMES) {
+            System.out.println("Too many usernames in one request (max " + MAX_BATCH_USERNAMES + ")");
+            return;
+        }
+        AdmissionController admissionController = LOGIN_SERVER.getAdmissionController();
+        if (!admissionController.tryAcquire(AdmissionController.Priority.LOW)) {
+            System.out.println(Status.SERVER_BUSY);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        int items = 1;
+        try {
+            switch (requestType) {
+                case "search" -> searchForUser(request.getUSERNAME());
+                case "delete" -> deleteUser(request.getUSERNAME());
+                case "prefix" -> {
+                    items = 0;
+                    searchIndex(request.getUSERNAME(), request);
+                }
+                case "list" -> {
+                    items = 0;
+                    searchIndex("", request);
+                }
+                case "batchsearch" -> {
+                    items = request.getUsernames().size();
+                    searchForUsers(request.getUsernames());
+                }
+                case "batchdelete" -> {
+                    items = request.getUsernames().size();
+                    deleteUsers(request.getUsernames());
+                }
+            }
+        } finally {
+            // bulk requests are normalized per user, and index searches don't touch the database at all
+            admissionController.release(startNanos, items);
         }
     }
 
@@ -78,6 +130,138 @@ public class ClientHandler implements Runnable {
         System.out.println((userFound) ? Status.USER_FOUND : Status.USER_NOT_FOUND);
     }
 
+    /**
+     * Method used when a client searches for many users in one request. All usernames are checked with a single
+     * query (per chunk) instead of one query each.
+     * Currently, the server only prints to itself whether each user was found or not.
+     * (Only admins are currently allowed to perform this operation).
+     *
+     * @param usernames List of the usernames
+     */
+    private void searchForUsers(List<String> usernames) {
+        if (!this.ROLE.equals("admin")) {
+            System.out.println("Only admins can search for many users");
+            return;
+        }
+        Set<String> foundUsers = LOGIN_SERVER.findUsers(usernames);
+        if (foundUsers == null) {
+            System.out.println("Could not search for users");
+            return;
+        }
+        Map<String, String> storedUsernames = storedUsernamesByKey(foundUsers);
+        Map<String, Status> results = new LinkedHashMap<>();
+        for (String username : usernames) {
+            String storedUsername = storedUsernames.get(usernameKey(username));
+            if (storedUsername != null) {
+                results.put(storedUsername, Status.USER_FOUND);
+            } else {
+                results.put(username, Status.USER_NOT_FOUND);
+            }
+        }
+        printResults(results);
+    }
+
+    /**
+     * Method to handle removal of many users in one request. Existing users are looked up with one query and then
+     * deleted together in one transaction. The status of each user is based on its own update count from the delete,
+     * so users removed by someone else in the meantime are reported as not found.
+     * (Only admins are currently allowed to perform this operation, a request from anyone else is rejected as a
+     * whole with a single audit event).
+     *
+     * @param usernames List of the usernames of users to be deleted
+     */
+    private void deleteUsers(List<String> usernames) {
+        if (!this.ROLE.equals("admin")) {
+            System.out.println(Status.USER_NOT_REMOVED);
+            audit("batch of " + usernames.size() + " users", Status.USER_NOT_REMOVED);
+            return;
+        }
+        Map<String, Status> results = new LinkedHashMap<>();
+        Set<String> foundUsers = LOGIN_SERVER.findUsers(usernames);
+        if (foundUsers == null) {
+            for (String username : usernames) {
+                results.put(username, Status.USER_NOT_REMOVED);
+            }
+        } else {
+            Map<String, String> storedUsernames = storedUsernamesByKey(foundUsers);
+            List<String> usersToDelete = new ArrayList<>();
+            for (String username : usernames) {
+                String storedUsername = storedUsernames.get(usernameKey(username));
+                if (storedUsername == null) {
+                    results.put(username, Status.USER_NOT_FOUND);
+                } else if (!results.containsKey(storedUsername)) {
+                    // placeholder keeps the order of the request, the status is set after the delete
+                    results.put(storedUsername, Status.USER_NOT_REMOVED);
+                    usersToDelete.add(storedUsername);
+                }
+            }
+            int[] updateCounts = LOGIN_SERVER.deleteUsers(usersToDelete);
+            for (int i = 0; i < usersToDelete.size(); i++) {
+                Status status = Status.USER_NOT_REMOVED;
+                if (updateCounts != null) {
+                    status = LoginServer.isDeleted(updateCounts[i]) ? Status.USER_REMOVED : Status.USER_NOT_FOUND;
+                }
+                results.put(usersToDelete.get(i), status);
+            }
+        }
+        for (Map.Entry<String, Status> result : results.entrySet()) {
+            audit(result.getKey(), result.getValue());
+        }
+        printResults(results);
+    }
+
+    /**
+     * Maps the usernames returned by the database on their case-insensitive key, so the usernames in a request can be
+     * matched with how they are stored (the database compares usernames case-insensitively).
+     *
+     * @param storedUsernames Set of usernames as stored in the database
+     * @return Map of keys and stored usernames
+     */
+    private Map<String, String> storedUsernamesByKey(Set<String> storedUsernames) {
+        Map<String, String> storedUsernamesByKey = new HashMap<>();
+        for (String storedUsername : storedUsernames) {
+            storedUsernamesByKey.put(usernameKey(storedUsername), storedUsername);
+        }
+        return storedUsernamesByKey;
+    }
+
+    private static String usernameKey(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Prints the status of each user in a batch request in the servers terminal.
+     *
+     * @param results Map of usernames and their statuses
+     */
+    private void printResults(Map<String, Status> results) {
+        for (Map.Entry<String, Status> result : results.entrySet()) {
+            System.out.println(result.getKey() + ": " + result.getValue());
+        }
+    }
+
+    /**
+     * Method used when a client makes a prefix/wildcard search or a paged listing of users. The search is served from
+     * the in-memory username index, and each username is handled as soon as it is found instead of collecting the
+     * whole result first.
+     * Currently, the server only prints the results to itself together with the cursor of the next page.
+     * (Only admins are currently allowed to perform this operation).
+     *
+     * @param pattern String of the prefix or wildcard pattern (empty to list all users)
+     * @param request RequestObject containing the cursor and page size
+     */
+    private void searchIndex(String pattern, RequestObject request) {
+        if (!this.ROLE.equals("admin")) {
+            System.out.println("Only admins can list users");
+            return;
+        }
+        int pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, request.getPageSize()));
+        System.out.println("Users matching \"" + pattern + "\":");
+        String nextCursor = LOGIN_SERVER.getUsernameIndex().search(pattern, request.getCursor(), pageSize,
+                System.out::println);
+        System.out.println((nextCursor != null) ? "Next page after: " + nextCursor : "No more users");
+    }
+
     /**
      * Method to handle removal of users from the database.
      * (Only admins are currently allowed to perform this operation).
@@ -89,11 +273,25 @@ public class ClientHandler implements Runnable {
         if (userFound && this.ROLE.equals("admin")) {
             LOGIN_SERVER.deleteUser(username);
             System.out.println(Status.USER_REMOVED);
+            audit(username, Status.USER_REMOVED);
         } else {
-            System.out.println("Could not delete user");
+            System.out.println(Status.USER_NOT_REMOVED);
+            audit(username, Status.USER_NOT_REMOVED);
         }
     }
 
+    /**
+     * Records a delete operation performed by this client in the audit log.
+     *
+     * @param target String of the username of the user to be deleted (or a description of a rejected batch)
+     * @param status Status of the operation
+     */
+    private void audit(String target, Status status) {
+        String ipAddress = SOCKET.getInetAddress().getHostAddress();
+        LOGIN_SERVER.getAuditLog().record(
+                new AuditEvent(AuditEvent.Action.DELETE, USERNAME, target, ipAddress, status.name()));
+    }
+
     /**
      * Logs out a user by asking the LoginServer to remove the client from the list of logged-in users, then finally
      * kills the thread safely.
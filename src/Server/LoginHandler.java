@@ -2,6 +2,7 @@ package Server;
 
 
 import Objects.RequestObject;
+import Security.AuditEvent;
 import Security.PasswordHandler;
 
 import java.io.IOException;
@@ -55,14 +56,29 @@ public class LoginHandler implements Runnable {
 
     /**
      * Handles requests by getting the request type from the request and calls the appropriate method to perform
-     * operations.
+     * operations. Requests are first admitted by the AdmissionController, and rejected with SERVER_BUSY if the server
+     * is overloaded (login requests have priority over the rest).
      * @param request RequestObject sent by the client
      */
     private void handleRequest(RequestObject request) {
-        switch (request.getREQUEST_TYPE()) {
-            case "login" -> loginUser(request);
-            case "create" -> createAccount(request);
-            case "reset" -> resetPassword(request);
+        AdmissionController admissionController = LOGIN_SERVER.getAdmissionController();
+        AdmissionController.Priority priority = request.getREQUEST_TYPE().equals("login")
+                ? AdmissionController.Priority.HIGH
+                : AdmissionController.Priority.LOW;
+        if (!admissionController.tryAcquire(priority)) {
+            System.out.println(Status.SERVER_BUSY);
+            //send to client that the server is busy
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            switch (request.getREQUEST_TYPE()) {
+                case "login" -> loginUser(request);
+                case "create" -> createAccount(request);
+                case "reset" -> resetPassword(request);
+            }
+        } finally {
+            admissionController.release(startNanos);
         }
     }
 
@@ -79,15 +95,18 @@ public class LoginHandler implements Runnable {
             boolean authenticated = PASSWORD_HANDLER.verifyPassword(requestObject.getPassword(), dbPassword);
             if (authenticated){
                 System.out.println(Status.LOGGED_IN);
+                audit(AuditEvent.Action.LOGIN, requestObject, Status.LOGGED_IN);
                 LOGIN_SERVER.addLoggedInUser(this.CLIENT_SOCKET, requestObject.getUSERNAME());
                 stopThread();
                 //send to client that user is logged in
             } else {
                 System.out.println(Status.LOG_IN_FAILED);
+                audit(AuditEvent.Action.LOGIN, requestObject, Status.LOG_IN_FAILED);
                 //send to client that login failed
             }
         } else {
             userNotFoundMessage();
+            audit(AuditEvent.Action.LOGIN, requestObject, Status.USER_NOT_FOUND);
         }
     }
 
@@ -100,11 +119,13 @@ public class LoginHandler implements Runnable {
         boolean userFound = LOGIN_SERVER.findUser(requestObject.getUSERNAME());
         if (userFound){
             System.out.println(Status.USER_NAME_NOT_AVAILABLE);
+            audit(AuditEvent.Action.CREATE, requestObject, Status.USER_NAME_NOT_AVAILABLE);
             //send to client that username already exists
         } else {
             byte[] hashedPassword = PASSWORD_HANDLER.getHashedPassword(requestObject.getPassword());
             LOGIN_SERVER.createAccount(requestObject.getUSERNAME(), hashedPassword);
             System.out.println(Status.USER_ADDED);
+            audit(AuditEvent.Action.CREATE, requestObject, Status.USER_ADDED);
             //send to client that account was successfully created
         }
     }
@@ -121,16 +142,32 @@ public class LoginHandler implements Runnable {
             boolean passwordReset = LOGIN_SERVER.resetPassword(requestObject.getUSERNAME(), hashedPassword);
             if (passwordReset){
                 System.out.println(Status.PASSWORD_RESET);
+                audit(AuditEvent.Action.RESET, requestObject, Status.PASSWORD_RESET);
                 //send to client that password was successfully changed
             } else {
-                System.out.println("Password couldn't be reset");
+                System.out.println(Status.PASSWORD_NOT_RESET);
+                audit(AuditEvent.Action.RESET, requestObject, Status.PASSWORD_NOT_RESET);
                 //send to client that password was not changed
             }
         } else {
             userNotFoundMessage();
+            audit(AuditEvent.Action.RESET, requestObject, Status.USER_NOT_FOUND);
         }
     }
 
+    /**
+     * Records an operation in the audit log. Operations from a client that is not logged in are performed on the
+     * account in the request, so it is used as both actor and target.
+     * @param action Action that was performed
+     * @param requestObject RequestObject sent by the client
+     * @param status Status of the operation
+     */
+    private void audit(AuditEvent.Action action, RequestObject requestObject, Status status){
+        String ipAddress = CLIENT_SOCKET.getInetAddress().getHostAddress();
+        String username = requestObject.getUSERNAME();
+        LOGIN_SERVER.getAuditLog().record(new AuditEvent(action, username, username, ipAddress, status.name()));
+    }
+
     /**
      * Prints status message if a user is not found in the servers terminal
      */
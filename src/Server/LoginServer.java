@@ -1,11 +1,20 @@
 package Server;
 
+import Security.AuditLog;
+import Security.TlsContextFactory;
+
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * LoginServer that deals with all database communication. It utilizes separate handler threads (that communicate with
@@ -15,17 +24,25 @@ import java.util.HashMap;
  */
 public class LoginServer implements Runnable {
     private static final int port = 2000;
+    private static final int tlsPort = 2001;
+    private static final int BATCH_SIZE = 1000;
     private boolean isRunning;
     private ServerSocket serverSocket;
+    private TlsAcceptor tlsAcceptor;
     private Connection dbConnection;
-    private ArrayList<Socket> loginHandlerSocketList = new ArrayList<>();
+    private List<Socket> loginHandlerSocketList = Collections.synchronizedList(new ArrayList<>());
     private HashMap<Socket, String> loggedInUsers = new HashMap<>();
+    private final AdmissionController ADMISSION_CONTROLLER = new AdmissionController();
+    private final AuditLog AUDIT_LOG = new AuditLog(Path.of("audit"));
+    private final UsernameIndex USERNAME_INDEX = new UsernameIndex();
 
     /**
      * Server constructor. Sets the server socket to a specific port to listen for incoming client connections and
-     * starts the server thread.
+     * starts the server thread. If a keystore is configured (system property tls.keystore) a TLS listener is started
+     * as well. The audit log is closed by a shutdown hook so queued audit events are written on every exit.
      */
     public LoginServer() {
+        Runtime.getRuntime().addShutdownHook(new Thread(AUDIT_LOG::close));
         try {
             serverSocket = new ServerSocket(port);
         } catch (IOException e) {
@@ -34,9 +51,28 @@ public class LoginServer implements Runnable {
             shutdown();
         }
         connectToDB();
+        loadUsernameIndex();
         isRunning = true;
         Thread serverThread = new Thread(this);
         serverThread.start();
+        if (System.getProperty("tls.keystore") != null) {
+            startTlsListener();
+        }
+    }
+
+    /**
+     * Creates the TLS context from the configured keystore (system properties tls.keystore and tls.password) and
+     * starts a TlsAcceptor accepting TLS connections.
+     */
+    private void startTlsListener() {
+        try {
+            Path keystore = Path.of(System.getProperty("tls.keystore"));
+            char[] password = System.getProperty("tls.password", "changeit").toCharArray();
+            tlsAcceptor = new TlsAcceptor(this, TlsContextFactory.createServerContext(keystore, password), tlsPort);
+        } catch (IOException | GeneralSecurityException e) {
+            System.err.println("Error creating TLS listener");
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -65,7 +101,7 @@ public class LoginServer implements Runnable {
      *
      * @param acceptedSocket Socket of the connected client
      */
-    private void assignLoginHandler(Socket acceptedSocket) {
+    protected void assignLoginHandler(Socket acceptedSocket) {
         loginHandlerSocketList.add(acceptedSocket);
         new LoginHandler(this, acceptedSocket);
     }
@@ -81,7 +117,7 @@ public class LoginServer implements Runnable {
         removeUserFromLoggingInList(clientSocket);
         String role = getUserRole(username);
         loggedInUsers.put(clientSocket, role);
-        new ClientHandler(this, clientSocket, role);
+        new ClientHandler(this, clientSocket, username, role);
     }
 
     /**
@@ -102,6 +138,62 @@ public class LoginServer implements Runnable {
         loginHandlerSocketList.remove(clientSocket);
     }
 
+    /**
+     * Method to get the admission controller shared by all handlers, used to reject requests early when the server
+     * is overloaded.
+     *
+     * @return Instance of the AdmissionController
+     */
+    protected AdmissionController getAdmissionController() {
+        return ADMISSION_CONTROLLER;
+    }
+
+    /**
+     * Method to get the security audit log that handlers record account operations in.
+     *
+     * @return Instance of the AuditLog
+     */
+    protected AuditLog getAuditLog() {
+        return AUDIT_LOG;
+    }
+
+    /**
+     * Method to get the in-memory index of all usernames, used for prefix and paged searches.
+     *
+     * @return Instance of the UsernameIndex
+     */
+    protected UsernameIndex getUsernameIndex() {
+        return USERNAME_INDEX;
+    }
+
+    /**
+     * Builds the username index by streaming all usernames from the database. The MySQL driver only streams rows
+     * (instead of reading the whole table into memory) with a forward-only result set and a fetch size of
+     * Integer.MIN_VALUE.
+     */
+    private void loadUsernameIndex() {
+        if (dbConnection == null) {
+            return;
+        }
+        String query = "SELECT username FROM usertestcase";
+        // the streaming result set must always be closed, otherwise every later query on the connection fails
+        try (Statement statement = dbConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(Integer.MIN_VALUE);
+            UsernameIndex.Builder builder = new UsernameIndex.Builder();
+            try (ResultSet rs = statement.executeQuery(query)) {
+                while (rs.next()) {
+                    builder.add(rs.getString("username"));
+                }
+            }
+            USERNAME_INDEX.replaceWith(builder);
+            System.out.println("Username index loaded: " + USERNAME_INDEX.size() + " users");
+        } catch (SQLException throwables) {
+            System.err.println("Could not load username index");
+            throwables.printStackTrace();
+        }
+    }
+
     /**
      * Gets the role that a user has, which is used to control what operations they are allowed to perform in
      * the database.
@@ -199,6 +291,40 @@ public class LoginServer implements Runnable {
         return userFound;
     }
 
+    /**
+     * Searches for many users at once. The usernames are checked with one "IN (...)" query per chunk of BATCH_SIZE
+     * usernames instead of one query per user.
+     * The database compares usernames case-insensitively, so the returned usernames are the ones stored in the
+     * database and may differ in case from the ones searched for.
+     *
+     * @param usernames List of usernames to search for
+     * @return Set of the stored usernames that were found, or null if the search failed
+     */
+    protected synchronized Set<String> findUsers(List<String> usernames) {
+        Set<String> foundUsers = new HashSet<>();
+        try {
+            for (int start = 0; start < usernames.size(); start += BATCH_SIZE) {
+                List<String> chunk = usernames.subList(start, Math.min(start + BATCH_SIZE, usernames.size()));
+                String query = "SELECT username FROM usertestcase WHERE username IN ("
+                        + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                PreparedStatement ps = dbConnection.prepareStatement(query);
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setString(i + 1, chunk.get(i));
+                }
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    foundUsers.add(rs.getString("username"));
+                }
+                ps.close();
+            }
+        } catch (SQLException throwables) {
+            System.err.println("Could not search for users");
+            throwables.printStackTrace();
+            return null;
+        }
+        return foundUsers;
+    }
+
     /**
      * Creates a new account by storing the username, password and user role in the database.
      * User role is set as "user". Admin accounts cannot be created with this method to avoid giving any user the
@@ -215,6 +341,7 @@ public class LoginServer implements Runnable {
             ps.setBytes(2, password);
             ps.setString(3, "user");
             ps.executeUpdate();
+            USERNAME_INDEX.add(username);
         } catch (SQLException throwables) {
             System.err.println("Account creation failed");
             throwables.printStackTrace();
@@ -223,22 +350,105 @@ public class LoginServer implements Runnable {
 
     /**
      * Deletes a user from the database based on the username. The row is completely removed from the database.
+     * The database compares usernames case-insensitively, so the usernames as they are stored are looked up first and
+     * those are removed from the username index.
      * (Only usable by admin users).
      *
      * @param username String representing clients username
      */
     protected synchronized void deleteUser(String username) {
+        String selectQuery = "SELECT username FROM usertestcase WHERE username = ?";
         String query = "DELETE FROM usertestcase where username = ?";
         try {
+            List<String> storedUsernames = new ArrayList<>();
+            try (PreparedStatement select = dbConnection.prepareStatement(selectQuery)) {
+                select.setString(1, username);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        storedUsernames.add(rs.getString("username"));
+                    }
+                }
+            }
             PreparedStatement ps = dbConnection.prepareStatement(query);
             ps.setString(1, username);
             ps.executeUpdate();
+            USERNAME_INDEX.removeAll(storedUsernames);
         } catch (SQLException throwables) {
             System.err.println("Could not delete user from db");
             throwables.printStackTrace();
         }
     }
 
+    /**
+     * Deletes many users at once with a JDBC batch in a single transaction. Either all users are removed, or none of
+     * them if something goes wrong.
+     * (Only usable by admin users).
+     *
+     * @param usernames List of usernames (as stored in the database) of users to be deleted
+     * @return Array with the update count of each username (0 if it didn't exist anymore), or null if the users
+     * could not be deleted
+     */
+    protected synchronized int[] deleteUsers(List<String> usernames) {
+        int[] updateCounts = null;
+        String query = "DELETE FROM usertestcase where username = ?";
+        try {
+            dbConnection.setAutoCommit(false);
+            PreparedStatement ps = dbConnection.prepareStatement(query);
+            int[] counts = new int[usernames.size()];
+            int executed = 0;
+            for (int i = 0; i < usernames.size(); i++) {
+                ps.setString(1, usernames.get(i));
+                ps.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    executed = copyUpdateCounts(ps.executeBatch(), counts, executed);
+                }
+            }
+            copyUpdateCounts(ps.executeBatch(), counts, executed);
+            dbConnection.commit();
+            ps.close();
+            updateCounts = counts;
+
+            List<String> deletedUsers = new ArrayList<>();
+            for (int i = 0; i < usernames.size(); i++) {
+                if (isDeleted(counts[i])) {
+                    deletedUsers.add(usernames.get(i));
+                }
+            }
+            USERNAME_INDEX.removeAll(deletedUsers);
+        } catch (SQLException throwables) {
+            System.err.println("Could not delete users from db");
+            throwables.printStackTrace();
+            try {
+                dbConnection.rollback();
+            } catch (SQLException rollbackError) {
+                rollbackError.printStackTrace();
+            }
+        } finally {
+            try {
+                dbConnection.setAutoCommit(true);
+            } catch (SQLException throwables) {
+                throwables.printStackTrace();
+            }
+        }
+        return updateCounts;
+    }
+
+    /**
+     * Checks if an update count from a batch means that the row was deleted.
+     * (SUCCESS_NO_INFO is returned by some drivers when the batch is rewritten as a single statement).
+     *
+     * @param updateCount Integer of the update count
+     * @return Boolean value if the row was deleted
+     */
+    protected static boolean isDeleted(int updateCount) {
+        return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+
+    private static int copyUpdateCounts(int[] batchCounts, int[] counts, int offset) {
+        System.arraycopy(batchCounts, 0, counts, offset, batchCounts.length);
+        return offset + batchCounts.length;
+    }
+
     /**
      * Creates a connection to a MySQL database with the url of the database, the username and password.
      * (Information removed since it's my private database on DSV).
@@ -263,12 +473,16 @@ public class LoginServer implements Runnable {
     private void shutdown() {
         System.out.println("Shutting down server.");
         isRunning = false;
+        if (tlsAcceptor != null) {
+            tlsAcceptor.shutdown();
+        }
         try {
             serverSocket.close();
         } catch (IOException e) {
             System.err.println("Error when closing socket");
             e.printStackTrace();
         }
+        AUDIT_LOG.close();
         System.exit(1);
     }
 
@@ -11,5 +11,8 @@ public enum Status {
     USER_NOT_FOUND,
     USER_REMOVED,
     USER_NAME_NOT_AVAILABLE,
-    PASSWORD_RESET
+    PASSWORD_RESET,
+    PASSWORD_NOT_RESET,
+    USER_NOT_REMOVED,
+    SERVER_BUSY
 }
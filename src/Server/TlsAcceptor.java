@@ -0,0 +1,349 @@
+package Server;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Accepts TLS connections for the LoginServer without letting slow or idle clients hold up the handshakes of others.
+ * <p>
+ * A single selector thread accepts connections and drives the whole handshake of each one with a non-blocking
+ * SSLEngine, so waiting for a client never uses a thread. Only the delegated tasks of the engine (the CPU heavy key
+ * exchange and signature work) run in a bounded pool sized per core; when a task is done the connection goes back to
+ * the selector. Connections that don't finish their handshake within HANDSHAKE_TIMEOUT_MILLIS are closed.
+ * Finished connections are wrapped in a TlsSocket with blocking streams and assigned a LoginHandler like any other
+ * connection.
+ */
+public class TlsAcceptor implements Runnable {
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 3_000;
+    private static final int MAX_PENDING_CONNECTIONS = 1024;
+    private static final int HANDSHAKE_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int HANDSHAKE_QUEUE_SIZE = 256;
+    private static final long SELECT_INTERVAL_MILLIS = 100;
+
+    private final Consumer<Socket> CONNECTION_HANDLER;
+    private final SSLContext SSL_CONTEXT;
+    private final ServerSocketChannel SERVER_CHANNEL;
+    private final Selector SELECTOR;
+    private final ThreadPoolExecutor HANDSHAKE_POOL = new ThreadPoolExecutor(HANDSHAKE_THREADS, HANDSHAKE_THREADS,
+            0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(HANDSHAKE_QUEUE_SIZE));
+    private final ConcurrentLinkedQueue<SelectionKey> FINISHED_TASKS = new ConcurrentLinkedQueue<>();
+    private volatile boolean isRunning;
+
+    /**
+     * Binds the TLS port and starts the selector thread. Connections are assigned a LoginHandler by the LoginServer.
+     *
+     * @param loginServer Instance of the LoginServer that assigns handlers to the connections
+     * @param sslContext  SSLContext of the server
+     * @param port        Integer of the port to listen on
+     */
+    public TlsAcceptor(LoginServer loginServer, SSLContext sslContext, int port) throws IOException {
+        this(socket -> {
+            System.out.println("TLS socket accepted: " + socket.getInetAddress().getHostAddress()
+                    + " (" + ((TlsSocket) socket).getSession().getProtocol() + "). Assigning new login handler.");
+            loginServer.assignLoginHandler(socket);
+        }, sslContext, new InetSocketAddress(port));
+        System.out.println("TLS listener started on port " + port);
+    }
+
+    /**
+     * Binds the given address and starts the selector thread.
+     *
+     * @param connectionHandler Consumer receiving each connection after its handshake (called on the selector thread,
+     *                          so it must not block)
+     * @param sslContext        SSLContext of the server
+     * @param address           InetSocketAddress to listen on (port 0 picks a free port)
+     */
+    public TlsAcceptor(Consumer<Socket> connectionHandler, SSLContext sslContext, InetSocketAddress address)
+            throws IOException {
+        this.CONNECTION_HANDLER = connectionHandler;
+        this.SSL_CONTEXT = sslContext;
+        SELECTOR = Selector.open();
+        SERVER_CHANNEL = ServerSocketChannel.open();
+        SERVER_CHANNEL.bind(address, MAX_PENDING_CONNECTIONS);
+        SERVER_CHANNEL.configureBlocking(false);
+        SERVER_CHANNEL.register(SELECTOR, SelectionKey.OP_ACCEPT);
+
+        isRunning = true;
+        Thread acceptorThread = new Thread(this);
+        acceptorThread.start();
+    }
+
+    /**
+     * A connection that is doing its handshake.
+     */
+    private static class Handshake {
+        private final long DEADLINE = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HANDSHAKE_TIMEOUT_MILLIS);
+        private final SSLEngine ENGINE;
+        private final ByteBuffer NET_IN;
+        private final ByteBuffer NET_OUT;
+        private final ByteBuffer APP_IN;
+        private boolean isComplete;
+
+        private Handshake(SSLEngine engine) {
+            this.ENGINE = engine;
+            SSLSession session = engine.getSession();
+            NET_IN = ByteBuffer.allocate(session.getPacketBufferSize());
+            NET_OUT = ByteBuffer.allocate(session.getPacketBufferSize());
+            NET_OUT.flip();
+            APP_IN = ByteBuffer.allocate(session.getApplicationBufferSize());
+        }
+    }
+
+    /**
+     * Method to get the port the listener is bound to.
+     *
+     * @return Integer of the local port
+     */
+    public int getLocalPort() {
+        return SERVER_CHANNEL.socket().getLocalPort();
+    }
+
+    /**
+     * Run method of the selector thread. Accepts connections, advances their handshakes and closes connections that
+     * are too slow.
+     */
+    @Override
+    public void run() {
+        while (isRunning) {
+            List<SelectionKey> completed = new ArrayList<>();
+            try {
+                SELECTOR.select(SELECT_INTERVAL_MILLIS);
+                Iterator<SelectionKey> keys = SELECTOR.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        acceptConnections();
+                    } else {
+                        advanceHandshake(key, completed);
+                    }
+                }
+                SelectionKey key;
+                while ((key = FINISHED_TASKS.poll()) != null) {
+                    if (key.isValid()) {
+                        advanceHandshake(key, completed);
+                    }
+                }
+                closeExpiredConnections();
+                if (!completed.isEmpty()) {
+                    // cancelled keys are only deregistered by the next select, which is needed before going back to
+                    // blocking mode
+                    SELECTOR.selectNow();
+                    for (SelectionKey completedKey : completed) {
+                        handOver((SocketChannel) completedKey.channel(), (Handshake) completedKey.attachment());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error in TLS listener");
+                e.printStackTrace();
+            }
+        }
+        closeListener();
+    }
+
+    /**
+     * Stops the listener and the handshake pool. The selector thread closes the server channel and all connections
+     * still doing their handshake when it stops.
+     */
+    public void shutdown() {
+        isRunning = false;
+        HANDSHAKE_POOL.shutdownNow();
+        SELECTOR.wakeup();
+    }
+
+    /**
+     * Closes the server channel, all connections still doing their handshake and the selector.
+     */
+    private void closeListener() {
+        try {
+            for (SelectionKey key : SELECTOR.keys()) {
+                key.channel().close();
+            }
+            SELECTOR.close();
+        } catch (IOException e) {
+            System.err.println("Error when closing TLS listener");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Accepts all waiting connections and registers them with a new server-side SSLEngine. If too many connections
+     * are already doing their handshake, new ones are closed right away.
+     */
+    private void acceptConnections() throws IOException {
+        SocketChannel channel;
+        while ((channel = SERVER_CHANNEL.accept()) != null) {
+            if (SELECTOR.keys().size() > MAX_PENDING_CONNECTIONS) {
+                System.err.println(Status.SERVER_BUSY + ": dropping TLS connection");
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+            SSLEngine engine = SSL_CONTEXT.createSSLEngine(remote.getHostString(), remote.getPort());
+            engine.setUseClientMode(false);
+            engine.beginHandshake();
+            channel.register(SELECTOR, SelectionKey.OP_READ, new Handshake(engine));
+        }
+    }
+
+    /**
+     * Advances a handshake as far as possible without blocking: sends what the engine wraps, unwraps what the client
+     * sent and hands delegated tasks to the pool. Returns when the handshake needs more data from the client, a
+     * write buffer to drain, a task to finish, or when it's complete.
+     *
+     * @param key       SelectionKey of the connection
+     * @param completed List the key is added to if the handshake is complete
+     */
+    private void advanceHandshake(SelectionKey key, List<SelectionKey> completed) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Handshake handshake = (Handshake) key.attachment();
+        SSLEngine engine = handshake.ENGINE;
+        try {
+            while (true) {
+                // everything wrapped must be sent before going on
+                if (handshake.NET_OUT.hasRemaining()) {
+                    channel.write(handshake.NET_OUT);
+                    if (handshake.NET_OUT.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                switch (engine.getHandshakeStatus()) {
+                    case NEED_WRAP -> {
+                        handshake.NET_OUT.clear();
+                        SSLEngineResult result = engine.wrap(ByteBuffer.allocate(0), handshake.NET_OUT);
+                        handshake.NET_OUT.flip();
+                        if (result.getStatus() == SSLEngineResult.Status.CLOSED && !handshake.NET_OUT.hasRemaining()) {
+                            closeQuietly(channel);
+                            return;
+                        }
+                    }
+                    case NEED_UNWRAP, NEED_UNWRAP_AGAIN -> {
+                        handshake.NET_IN.flip();
+                        SSLEngineResult result = engine.unwrap(handshake.NET_IN, handshake.APP_IN);
+                        handshake.NET_IN.compact();
+                        if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                            closeQuietly(channel);
+                            return;
+                        }
+                        if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                            int read = channel.read(handshake.NET_IN);
+                            if (read < 0 || !handshake.NET_IN.hasRemaining() && read == 0) {
+                                // closed by the client, or a record larger than the engine allows
+                                closeQuietly(channel);
+                                return;
+                            }
+                            if (read == 0) {
+                                key.interestOps(SelectionKey.OP_READ);
+                                return;
+                            }
+                        }
+                    }
+                    case NEED_TASK -> {
+                        key.interestOps(0);
+                        runDelegatedTasks(key, engine);
+                        return;
+                    }
+                    default -> {
+                        if (!handshake.isComplete) {
+                            handshake.isComplete = true;
+                            key.cancel();
+                            completed.add(key);
+                        }
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("TLS handshake failed: " + e.getMessage());
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Runs the delegated tasks of an engine in the handshake pool. When they are done the connection is queued for
+     * the selector thread, which continues the handshake. If the pool is full the connection is closed.
+     *
+     * @param key    SelectionKey of the connection
+     * @param engine SSLEngine with delegated tasks
+     */
+    private void runDelegatedTasks(SelectionKey key, SSLEngine engine) {
+        try {
+            HANDSHAKE_POOL.execute(() -> {
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                FINISHED_TASKS.add(key);
+                SELECTOR.wakeup();
+            });
+        } catch (RejectedExecutionException e) {
+            System.err.println(Status.SERVER_BUSY + ": dropping TLS connection");
+            closeQuietly(key.channel());
+        }
+    }
+
+    /**
+     * Closes connections that haven't finished their handshake before their deadline. Handshakes that completed in
+     * the same pass are skipped, they are handed over right after.
+     */
+    private void closeExpiredConnections() {
+        long now = System.nanoTime();
+        for (SelectionKey key : SELECTOR.keys()) {
+            if (key.attachment() instanceof Handshake handshake && !handshake.isComplete
+                    && now - handshake.DEADLINE > 0) {
+                closeQuietly(key.channel());
+            }
+        }
+    }
+
+    /**
+     * Switches a connection with a complete handshake back to blocking mode and passes it on as a TlsSocket,
+     * including any bytes the client already sent after the handshake.
+     *
+     * @param channel   SocketChannel of the connection
+     * @param handshake Handshake of the connection
+     */
+    private void handOver(SocketChannel channel, Handshake handshake) {
+        try {
+            channel.configureBlocking(true);
+            CONNECTION_HANDLER.accept(new TlsSocket(channel, handshake.ENGINE, handshake.NET_IN));
+        } catch (IOException e) {
+            System.err.println("TLS handshake failed: " + e.getMessage());
+            closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package Server;
+
+import Security.TlsContextFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark that measures how many full and resumed TLS handshakes per second the server's TlsAcceptor can handle.
+ * Starts a TlsAcceptor on a random local port and connects to it from several client threads, first invalidating each
+ * session to force full handshakes, then keeping the sessions so they are resumed.
+ * <p>
+ * Usage: TlsHandshakeBenchmark [keystore] [truststore] [password] [seconds per run] [client threads]
+ */
+public class TlsHandshakeBenchmark {
+    private static final String HOST_ADDRESS = "127.0.0.1";
+
+    private final SSLContext CLIENT_CONTEXT;
+    private final TlsAcceptor TLS_ACCEPTOR;
+
+    public TlsHandshakeBenchmark(Path keystore, Path truststore, char[] password)
+            throws IOException, GeneralSecurityException {
+        CLIENT_CONTEXT = TlsContextFactory.createClientContext(truststore, password);
+        TLS_ACCEPTOR = new TlsAcceptor(TlsHandshakeBenchmark::reply,
+                TlsContextFactory.createServerContext(keystore, password),
+                new InetSocketAddress(InetAddress.getByName(HOST_ADDRESS), 0));
+    }
+
+    /**
+     * Writes a single byte to each connection after its handshake, so the client reads (and stores) the TLS 1.3
+     * session ticket before it disconnects, then closes the connection.
+     */
+    private static void reply(Socket socket) {
+        try (socket) {
+            socket.getOutputStream().write(1);
+        } catch (IOException e) {
+            System.err.println("Server reply failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs handshakes from several client threads for a fixed time.
+     *
+     * @param resume  Boolean value if sessions should be resumed (true) or invalidated to force full handshakes
+     * @param seconds Duration of the run
+     * @param threads Number of client threads
+     * @return Double of the handshakes per second
+     */
+    public double run(boolean resume, int seconds, int threads) throws InterruptedException {
+        AtomicLong handshakes = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clients = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    try {
+                        connect(resume);
+                        handshakes.incrementAndGet();
+                    } catch (IOException e) {
+                        System.err.println("Client handshake failed: " + e.getMessage());
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(seconds + 30L, TimeUnit.SECONDS);
+        return handshakes.get() / (double) seconds;
+    }
+
+    private void connect(boolean resume) throws IOException {
+        try (SSLSocket socket = (SSLSocket) CLIENT_CONTEXT.getSocketFactory()
+                .createSocket(HOST_ADDRESS, TLS_ACCEPTOR.getLocalPort())) {
+            socket.setTcpNoDelay(true);
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+            if (socket.getInputStream().read() < 0) {
+                throw new IOException("Connection closed before reply");
+            }
+            if (!resume) {
+                socket.getSession().invalidate();
+            }
+        }
+    }
+
+    public void close() {
+        TLS_ACCEPTOR.shutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path keystore = Path.of(args.length > 0 ? args[0] : "server.p12");
+        Path truststore = Path.of(args.length > 1 ? args[1] : "truststore.p12");
+        char[] password = (args.length > 2 ? args[2] : "changeit").toCharArray();
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        TlsHandshakeBenchmark benchmark = new TlsHandshakeBenchmark(keystore, truststore, password);
+        // warm up the JIT before measuring
+        benchmark.run(false, 2, threads);
+        benchmark.run(true, 2, threads);
+        double full = benchmark.run(false, seconds, threads);
+        double resumed = benchmark.run(true, seconds, threads);
+        benchmark.close();
+
+        System.out.printf("Full handshakes:    %10.1f /s%n", full);
+        System.out.printf("Resumed handshakes: %10.1f /s%n", resumed);
+        System.out.printf("Speedup:            %10.2fx%n", resumed / full);
+    }
+}
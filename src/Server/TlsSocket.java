@@ -0,0 +1,291 @@
+package Server;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Socket for a TLS connection whose handshake was done by TlsAcceptor with an SSLEngine. Wraps the engine and the
+ * (now blocking) channel in blocking streams, so the connection can be given to a LoginHandler like any other socket.
+ * <p>
+ * Reads and writes are locked separately so one thread can wait for a request while another one writes. Post-handshake
+ * messages (e.g. key updates) are handled as they arrive, and delegated tasks then run in the calling thread.
+ */
+class TlsSocket extends Socket {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel CHANNEL;
+    private final SSLEngine ENGINE;
+    private final Object READ_LOCK = new Object();
+    private final Object WRITE_LOCK = new Object();
+    private final InputStream INPUT_STREAM = new TlsInputStream();
+    private final OutputStream OUTPUT_STREAM = new TlsOutputStream();
+    private ByteBuffer netIn;
+    private ByteBuffer appIn;
+    private ByteBuffer netOut;
+
+    /**
+     * Creates the socket of a connection with a finished handshake.
+     *
+     * @param channel SocketChannel of the connection (in blocking mode)
+     * @param engine  SSLEngine that did the handshake
+     * @param netIn   ByteBuffer (in write mode) with encrypted bytes already read after the handshake
+     */
+    TlsSocket(SocketChannel channel, SSLEngine engine, ByteBuffer netIn) {
+        this.CHANNEL = channel;
+        this.ENGINE = engine;
+        SSLSession session = engine.getSession();
+        this.netIn = ByteBuffer.allocate(Math.max(session.getPacketBufferSize(), netIn.position()));
+        this.netIn.put(netIn.flip());
+        appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+        appIn.flip();
+        netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+    }
+
+    /**
+     * Method to get the TLS session of the connection.
+     *
+     * @return SSLSession of the connection
+     */
+    public SSLSession getSession() {
+        return ENGINE.getSession();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (isClosed()) {
+            throw new SocketException("Socket is closed");
+        }
+        return INPUT_STREAM;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (isClosed()) {
+            throw new SocketException("Socket is closed");
+        }
+        return OUTPUT_STREAM;
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return CHANNEL.socket().getInetAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return CHANNEL.socket().getPort();
+    }
+
+    @Override
+    public int getLocalPort() {
+        return CHANNEL.socket().getLocalPort();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return CHANNEL.isConnected();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !CHANNEL.isOpen();
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) throws SocketException {
+        CHANNEL.socket().setTcpNoDelay(on);
+    }
+
+    /**
+     * Sends close_notify (if the connection is still usable) and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed()) {
+            return;
+        }
+        try {
+            synchronized (WRITE_LOCK) {
+                ENGINE.closeOutbound();
+                while (!ENGINE.isOutboundDone()) {
+                    wrap(EMPTY);
+                }
+            }
+        } catch (IOException e) {
+            // the peer is already gone, nothing more to send
+        } finally {
+            CHANNEL.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TlsSocket[" + CHANNEL.socket() + "]";
+    }
+
+    /**
+     * Decrypts records until some application data is available.
+     *
+     * @return Boolean value if there is data to read, false at the end of the stream
+     */
+    private boolean fillAppIn() throws IOException {
+        while (!appIn.hasRemaining()) {
+            if (ENGINE.isInboundDone()) {
+                return false;
+            }
+            netIn.flip();
+            appIn.clear();
+            SSLEngineResult result;
+            try {
+                result = ENGINE.unwrap(netIn, appIn);
+            } finally {
+                netIn.compact();
+                appIn.flip();
+            }
+            switch (result.getStatus()) {
+                case BUFFER_UNDERFLOW -> {
+                    if (!netIn.hasRemaining()) {
+                        netIn = grow(netIn, ENGINE.getSession().getPacketBufferSize());
+                    }
+                    if (CHANNEL.read(netIn) < 0) {
+                        try {
+                            ENGINE.closeInbound();
+                        } catch (SSLException e) {
+                            // the peer closed without close_notify, treated as the end of the stream
+                        }
+                        return false;
+                    }
+                }
+                case BUFFER_OVERFLOW -> appIn = ByteBuffer.allocate(ENGINE.getSession().getApplicationBufferSize())
+                        .flip();
+                case CLOSED -> {
+                    close();
+                    return false;
+                }
+                case OK -> handlePostHandshake(result.getHandshakeStatus());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encrypts data and writes it to the channel.
+     *
+     * @param source ByteBuffer with the data to send
+     */
+    private void wrap(ByteBuffer source) throws IOException {
+        netOut.clear();
+        SSLEngineResult result = ENGINE.wrap(source, netOut);
+        netOut.flip();
+        while (netOut.hasRemaining()) {
+            CHANNEL.write(netOut);
+        }
+        switch (result.getStatus()) {
+            case BUFFER_OVERFLOW -> netOut = ByteBuffer.allocate(ENGINE.getSession().getPacketBufferSize());
+            case CLOSED -> {
+                if (source.hasRemaining()) {
+                    throw new SocketException("Socket is closed");
+                }
+            }
+            default -> handlePostHandshake(result.getHandshakeStatus());
+        }
+    }
+
+    /**
+     * Handles post-handshake messages: runs delegated tasks in the calling thread and sends any reply.
+     */
+    private void handlePostHandshake(SSLEngineResult.HandshakeStatus status) throws IOException {
+        if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            Runnable task;
+            while ((task = ENGINE.getDelegatedTask()) != null) {
+                task.run();
+            }
+            status = ENGINE.getHandshakeStatus();
+        }
+        if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+            synchronized (WRITE_LOCK) {
+                while (ENGINE.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                    wrap(EMPTY);
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int minimumCapacity) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(minimumCapacity, 2 * buffer.capacity()));
+        return grown.put(buffer.flip());
+    }
+
+    /**
+     * Blocking stream of the decrypted data.
+     */
+    private class TlsInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (READ_LOCK) {
+                if (!fillAppIn()) {
+                    return -1;
+                }
+                int count = Math.min(len, appIn.remaining());
+                appIn.get(b, off, count);
+                return count;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (READ_LOCK) {
+                return appIn.remaining();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            TlsSocket.this.close();
+        }
+    }
+
+    /**
+     * Stream that encrypts and sends all written data right away.
+     */
+    private class TlsOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer source = ByteBuffer.wrap(b, off, len);
+            synchronized (WRITE_LOCK) {
+                while (source.hasRemaining()) {
+                    wrap(source);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            TlsSocket.this.close();
+        }
+    }
+}
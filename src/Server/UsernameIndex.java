@@ -0,0 +1,332 @@
+package Server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index of all usernames, used for prefix, wildcard and paged searches without scanning the database.
+ * Usernames are compared case-insensitively, like the database does. Each username is stored as a lowercased key and
+ * its original spelling, both as UTF-8 bytes in parallel arrays sorted by key (unsigned byte order, which is the same
+ * as code point order), so a search only needs a binary search to find where to start. The original spelling shares
+ * the array of the key when they are equal. The index is built once from the database and then kept up to date when
+ * accounts are created or deleted.
+ */
+public class UsernameIndex {
+    private final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private byte[][] keys = new byte[0][];
+    private byte[][] usernames = new byte[0][];
+    private int size;
+
+    /**
+     * Replaces the content of the index with the usernames collected by a builder.
+     *
+     * @param builder Builder containing all usernames
+     */
+    public void replaceWith(Builder builder) {
+        builder.build();
+        LOCK.writeLock().lock();
+        try {
+            keys = builder.keys;
+            usernames = builder.usernames;
+            size = builder.size;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a username to the index (if it's not already in it).
+     *
+     * @param username String of the username
+     */
+    public void add(String username) {
+        byte[] key = toKey(username);
+        byte[] name = toName(username, key);
+        LOCK.writeLock().lock();
+        try {
+            int index = binarySearch(key);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -(index + 1);
+            if (size == keys.length) {
+                int capacity = Math.max(16, size + (size >> 1));
+                keys = Arrays.copyOf(keys, capacity);
+                usernames = Arrays.copyOf(usernames, capacity);
+            }
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+            System.arraycopy(usernames, insertAt, usernames, insertAt + 1, size - insertAt);
+            keys[insertAt] = key;
+            usernames[insertAt] = name;
+            size++;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a username from the index.
+     *
+     * @param username String of the username
+     */
+    public void remove(String username) {
+        byte[] key = toKey(username);
+        LOCK.writeLock().lock();
+        try {
+            int index = binarySearch(key);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(usernames, index + 1, usernames, index, size - index - 1);
+            size--;
+            keys[size] = null;
+            usernames[size] = null;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes many usernames from the index at once. The array is compacted in a single pass instead of once per
+     * username.
+     *
+     * @param usernamesToRemove Collection of usernames
+     */
+    public void removeAll(Collection<String> usernamesToRemove) {
+        LOCK.writeLock().lock();
+        try {
+            BitSet removed = new BitSet(size);
+            for (String username : usernamesToRemove) {
+                int index = binarySearch(toKey(username));
+                if (index >= 0) {
+                    removed.set(index);
+                }
+            }
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.get(i)) {
+                    keys[kept] = keys[i];
+                    usernames[kept++] = usernames[i];
+                }
+            }
+            Arrays.fill(keys, kept, size, null);
+            Arrays.fill(usernames, kept, size, null);
+            size = kept;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method to get the number of usernames in the index
+     *
+     * @return Integer of the number of usernames
+     */
+    public int size() {
+        LOCK.readLock().lock();
+        try {
+            return size;
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches for usernames matching a pattern and passes them to the consumer in sorted order, one at a time.
+     * The pattern is a prefix that may contain the wildcards '*' (any characters) and '?' (one character), and is
+     * always matched as a prefix ("al?" matches "alex"). Only the part before the first wildcard is used to find the
+     * range to scan. Matching is case-insensitive and the usernames are returned with their original spelling.
+     * Results are paged: only usernames after the cursor are returned, and at most limit of them.
+     *
+     * @param pattern  String of the prefix or wildcard pattern
+     * @param after    String of the last username on the previous page, or null/empty for the first page
+     * @param limit    Maximum number of usernames to return
+     * @param consumer Consumer receiving each matching username
+     * @return String of the last returned username (cursor for the next page), or null if there are no more results
+     */
+    public String search(String pattern, String after, int limit, Consumer<String> consumer) {
+        String normalized = normalize(pattern);
+        int wildcardAt = indexOfWildcard(normalized);
+        boolean hasWildcard = wildcardAt >= 0;
+        byte[] prefix = toBytes(hasWildcard ? normalized.substring(0, wildcardAt) : normalized);
+        // every pattern is a prefix search, so the glob always ends with '*'
+        String glob = normalized.endsWith("*") ? normalized : normalized + "*";
+
+        byte[][] page = new byte[limit][];
+        int found = 0;
+        boolean hasMore = false;
+        LOCK.readLock().lock();
+        try {
+            int start = lowerBound(prefix);
+            if (after != null && !after.isEmpty()) {
+                int cursor = binarySearch(toKey(after));
+                start = Math.max(start, cursor >= 0 ? cursor + 1 : -(cursor + 1));
+            }
+            for (int i = start; i < size && startsWith(keys[i], prefix); i++) {
+                if (!hasWildcard || matches(glob, new String(keys[i], StandardCharsets.UTF_8))) {
+                    if (found == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    page[found++] = usernames[i];
+                }
+            }
+        } finally {
+            LOCK.readLock().unlock();
+        }
+
+        String last = null;
+        for (int i = 0; i < found; i++) {
+            last = new String(page[i], StandardCharsets.UTF_8);
+            consumer.accept(last);
+        }
+        return hasMore ? last : null;
+    }
+
+    /**
+     * Binary search for a username. Must be called while holding the lock.
+     *
+     * @return Index of the username if found, otherwise (-(insertion point) - 1)
+     */
+    private int binarySearch(byte[] key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = Arrays.compareUnsigned(keys[mid], key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Index of the first username that is greater than or equal to the key. Must be called while holding the lock.
+     */
+    private int lowerBound(byte[] key) {
+        int index = binarySearch(key);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    private static boolean startsWith(byte[] username, byte[] prefix) {
+        return username.length >= prefix.length
+                && Arrays.equals(username, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static int indexOfWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Matches a username against a pattern with '*' and '?' wildcards (greedy matching with backtracking to the last
+     * '*').
+     */
+    private static boolean matches(String pattern, String username) {
+        int p = 0;
+        int u = 0;
+        int starAt = -1;
+        int matchAt = 0;
+        while (u < username.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == username.charAt(u))) {
+                p++;
+                u++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                starAt = p++;
+                matchAt = u;
+            } else if (starAt >= 0) {
+                p = starAt + 1;
+                u = ++matchAt;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    private static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static byte[] toKey(String username) {
+        return toBytes(normalize(username));
+    }
+
+    /**
+     * UTF-8 bytes of the original spelling, or the key itself if the username is already lowercase.
+     */
+    private static byte[] toName(String username, byte[] key) {
+        byte[] name = toBytes(username);
+        return Arrays.equals(name, key) ? key : name;
+    }
+
+    private static byte[] toBytes(String username) {
+        return username.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Collects usernames (in any order) when the index is built from the database, and sorts them once at the end.
+     */
+    public static class Builder {
+        private byte[][] keys = new byte[1024][];
+        private byte[][] usernames = new byte[1024][];
+        private int size;
+
+        /**
+         * Adds a username to the builder.
+         *
+         * @param username String of the username
+         */
+        public void add(String username) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size + (size >> 1));
+                usernames = Arrays.copyOf(usernames, keys.length);
+            }
+            byte[] key = toKey(username);
+            keys[size] = key;
+            usernames[size++] = toName(username, key);
+        }
+
+        /**
+         * Sorts the collected usernames by key and removes duplicate keys (the first spelling is kept).
+         */
+        private void build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+            byte[][] sortedKeys = new byte[size][];
+            byte[][] sortedUsernames = new byte[size][];
+            int unique = 0;
+            for (int index : order) {
+                if (unique == 0 || !Arrays.equals(sortedKeys[unique - 1], keys[index])) {
+                    sortedKeys[unique] = keys[index];
+                    sortedUsernames[unique++] = usernames[index];
+                }
+            }
+            keys = Arrays.copyOf(sortedKeys, unique);
+            usernames = Arrays.copyOf(sortedUsernames, unique);
+            size = unique;
+        }
+    }
+}